@@ -0,0 +1,177 @@
+package com.zsj.sql;
+
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AllScriptRunner 热点基准：文本替换、语句切分、串行与multi并发执行（H2 Oracle兼容模式）
+ * <p>
+ * replaceStr 在当前目录使用临时文件 tmpFile，请在临时目录下运行
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AllScriptRunnerBenchmark {
+
+    /**
+     * 脚本树参数
+     */
+    @State(Scope.Benchmark)
+    public static abstract class TreeState {
+        @Param({"4"})
+        int dirs;
+        @Param({"16", "64"})
+        int files;
+        @Param({"50"})
+        int statements;
+
+        Path root;
+        List<String> dirNames;
+
+        /**
+         * 是否放入multi目录，只有执行时有区别
+         */
+        boolean multi() {
+            return false;
+        }
+
+        void writeTree() throws Exception {
+            BenchData.writeScriptTree(root, dirs, files, statements, multi());
+            dirNames = BenchData.listDirs(root);
+        }
+
+        @TearDown(Level.Trial)
+        public void deleteTree() throws Exception {
+            BenchData.deleteTree(root);
+        }
+    }
+
+    /**
+     * 每次调用前重新生成脚本树（changeNeedReplace 会改写文件）
+     */
+    @State(Scope.Benchmark)
+    public static class ReplaceState extends TreeState {
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            root = Files.createTempDirectory("bench-replace");
+        }
+
+        @Setup(Level.Invocation)
+        public void regenerate() throws Exception {
+            writeTree();
+        }
+    }
+
+    /**
+     * 脚本树只生成和替换一次，之后反复执行（脚本可重复执行）
+     */
+    @State(Scope.Benchmark)
+    public static class RunState extends TreeState {
+        @Param({"serial", "multi"})
+        String layout;
+
+        PooledDataSource dataSource;
+        List<AllScriptRunner.SqlTask> tasks;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            root = Files.createTempDirectory("bench-run");
+            writeTree();
+            String url = MessageFormat.format(BenchData.H2_URL, "run");
+            dataSource = AllScriptRunner.SqlTask.newPool(url, BenchData.H2_USR, BenchData.H2_PWD);
+            try (Connection conn = dataSource.getConnection()) {
+                BenchData.createScriptSchema(conn, dirs * files * statements);
+            }
+            tasks = new ArrayList<>();
+            for (String dir : dirNames) {
+                tasks.add(new AllScriptRunner.SqlTask(dir, dataSource));
+            }
+        }
+
+        @Override
+        boolean multi() {
+            return "multi".equals(layout);
+        }
+
+        @TearDown(Level.Trial)
+        public void closePool() {
+            dataSource.forceCloseAll();
+        }
+    }
+
+    /**
+     * 单脚本语句切分
+     */
+    @State(Scope.Benchmark)
+    public static class SplitState {
+        @Param({"1000"})
+        int statements;
+        @Param({";", "/"})
+        String delimiter;
+
+        String script;
+        Connection conn;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            script = BenchData.script(statements, delimiter);
+            String url = MessageFormat.format(BenchData.H2_URL, "split");
+            conn = DriverManager.getConnection(url, BenchData.H2_USR, BenchData.H2_PWD);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            conn.close();
+        }
+    }
+
+    /**
+     * 扫描、排序并做SQLPlus语法替换（SqlTask构造过程）
+     */
+    @Benchmark
+    public List<AllScriptRunner.SqlTask> changeNeedReplace(ReplaceState state) {
+        List<AllScriptRunner.SqlTask> tasks = new ArrayList<>();
+        for (String dir : state.dirNames) {
+            // 仅构造，不会取连接
+            tasks.add(new AllScriptRunner.SqlTask(dir, null));
+        }
+        return tasks;
+    }
+
+    /**
+     * 按目录执行脚本；layout=multi 时走 runMulti
+     */
+    @Benchmark
+    public void run(RunState state) throws Exception {
+        for (AllScriptRunner.SqlTask task : state.tasks) {
+            task.run();
+        }
+    }
+
+    /**
+     * ScriptRunner 对单个脚本的切分与执行
+     */
+    @Benchmark
+    public void splitStatements(SplitState state) {
+        ScriptRunner runner = new ScriptRunner(state.conn);
+        runner.setDelimiter(state.delimiter);
+        runner.setStopOnError(true);
+        runner.setAutoCommit(true);
+        runner.setLogWriter(null);
+        runner.setErrorLogWriter(null);
+        runner.runScript(new StringReader(state.script));
+    }
+}
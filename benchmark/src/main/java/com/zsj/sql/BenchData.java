@@ -0,0 +1,221 @@
+package com.zsj.sql;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * 基准测试的合成数据生成器
+ */
+public class BenchData {
+
+    public static final String H2_URL = "jdbc:h2:mem:{0};MODE=Oracle;DB_CLOSE_DELAY=-1";
+    public static final String H2_USR = "sa";
+    public static final String H2_PWD = "";
+    public static final String TAB_PREFIX = "BENCH_TAB_";
+    public static final String DB_LINK_B = "_B";
+    public static final String SCRIPT_TAB = "BENCH_SCRIPT";
+    public static final String MULTI_DIR = "multi";
+
+    /**
+     * 供脚本中 exec/call 调用的空过程
+     *
+     * @return 0
+     */
+    public static int noop() {
+        return 0;
+    }
+
+    /**
+     * 生成若干对比表，B表名以 {@link #DB_LINK_B} 结尾，借DBLink后缀拼出第二张表
+     *
+     * @param conn   数据库连接
+     * @param tables 表数
+     * @param rows   每表行数
+     * @param cols   每表数据列数
+     * @param drift  B表与A表不一致的行比例
+     * @throws SQLException 建表或插入异常
+     */
+    public static void createCompareTables(Connection conn, int tables, int rows, int cols, double drift) throws SQLException {
+        Random random = new Random(42);
+        for (int t = 0; t < tables; t++) {
+            String tabA = TAB_PREFIX + t;
+            String tabB = tabA + DB_LINK_B;
+            createCompareTable(conn, tabA, cols);
+            createCompareTable(conn, tabB, cols);
+            try (PreparedStatement psA = conn.prepareStatement(insertSql(tabA, cols));
+                 PreparedStatement psB = conn.prepareStatement(insertSql(tabB, cols))) {
+                for (int r = 0; r < rows; r++) {
+                    psA.setInt(1, r);
+                    psB.setInt(1, r);
+                    boolean drifted = random.nextDouble() < drift;
+                    for (int c = 0; c < cols; c++) {
+                        String value = "v" + r + "_" + c;
+                        psA.setString(c + 2, value);
+                        psB.setString(c + 2, drifted && c == 0 ? value + "x" : value);
+                    }
+                    psA.addBatch();
+                    psB.addBatch();
+                    if (r % 1000 == 999) {
+                        psA.executeBatch();
+                        psB.executeBatch();
+                    }
+                }
+                psA.executeBatch();
+                psB.executeBatch();
+            }
+        }
+    }
+
+    private static void createCompareTable(Connection conn, String tab, int cols) throws SQLException {
+        StringBuilder sb = new StringBuilder("create table ").append(tab).append(" (id number primary key");
+        for (int c = 0; c < cols; c++) {
+            sb.append(", c").append(c).append(" varchar2(64)");
+        }
+        sb.append(")");
+        try (Statement st = conn.createStatement()) {
+            st.execute("drop table if exists " + tab);
+            st.execute(sb.toString());
+        }
+    }
+
+    private static String insertSql(String tab, int cols) {
+        return "insert into " + tab + " values (?" + ", ?".repeat(cols) + ")";
+    }
+
+    /**
+     * 生成指向H2的对比配置
+     *
+     * @param url    H2连接串
+     * @param tables 表数
+     * @return 对比配置
+     */
+    public static DataCompare.Config compareConfig(String url, int tables) {
+        DataCompare.Config.DB conn = new DataCompare.Config.DB();
+        conn.setName("H2");
+        conn.setUrl(url);
+        conn.setUsr(H2_USR);
+        conn.setPwd(H2_PWD);
+        DataCompare.Config.DB a = new DataCompare.Config.DB();
+        a.setName("A");
+        DataCompare.Config.DB b = new DataCompare.Config.DB();
+        b.setName("B");
+        b.setDbLinkName(DB_LINK_B);
+        List<DataCompare.Config.Tab> tabs = new ArrayList<>();
+        for (int t = 0; t < tables; t++) {
+            DataCompare.Config.Tab tab = new DataCompare.Config.Tab();
+            tab.setTabName(TAB_PREFIX + t);
+            tab.setColNames("*");
+            tabs.add(tab);
+        }
+        DataCompare.Config config = new DataCompare.Config();
+        config.setConn(conn);
+        config.setA(a);
+        config.setB(b);
+        config.setTabs(tabs);
+        return config;
+    }
+
+    /**
+     * 准备脚本执行所需的表和过程
+     *
+     * @param conn 数据库连接
+     * @param rows 表行数（不小于脚本中用到的最大ID）
+     * @throws SQLException 建表异常
+     */
+    public static void createScriptSchema(Connection conn, int rows) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("drop table if exists " + SCRIPT_TAB);
+            st.execute("create table " + SCRIPT_TAB + " (id number primary key, v number)");
+            st.execute("insert into " + SCRIPT_TAB + " select x, 0 from system_range(0, " + (rows - 1) + ")");
+            st.execute("create alias if not exists BENCH_NOOP for '" + BenchData.class.getName() + ".noop'");
+        }
+    }
+
+    /**
+     * 生成脚本树：root/dNN/[multi/]NNN.sql
+     *
+     * @param root       根目录
+     * @param dirs       目录数
+     * @param files      每目录文件数
+     * @param statements 每文件语句数
+     * @param multi      是否放入multi目录（并发执行）
+     * @throws IOException 写文件异常
+     */
+    public static void writeScriptTree(Path root, int dirs, int files, int statements, boolean multi) throws IOException {
+        deleteTree(root);
+        int id = 0;
+        for (int d = 0; d < dirs; d++) {
+            Path dir = root.resolve(String.format("d%02d", d));
+            Path fileDir = multi ? dir.resolve(MULTI_DIR) : dir;
+            Files.createDirectories(fileDir);
+            for (int f = 0; f < files; f++) {
+                StringBuilder sb = new StringBuilder();
+                sb.append("/*\n * generated ").append(d).append('/').append(f).append("\n */\n");
+                for (int s = 0; s < statements; s++, id++) {
+                    if (s % 10 == 0) sb.append("-- step ").append(s).append('\n');
+                    if (s % 5 == 4) {
+                        sb.append("exec bench_noop();\n");
+                    } else {
+                        sb.append("update ").append(SCRIPT_TAB).append(" set v = v + 1 where id = ").append(id).append(";\n");
+                    }
+                }
+                Files.writeString(fileDir.resolve(String.format("%03d.sql", f)), sb.toString());
+            }
+        }
+    }
+
+    /**
+     * 脚本树中各个任务目录
+     *
+     * @param root 根目录
+     * @return 排序后的目录列表
+     * @throws IOException 读目录异常
+     */
+    public static List<String> listDirs(Path root) throws IOException {
+        try (Stream<Path> paths = Files.list(root)) {
+            return paths.filter(Files::isDirectory).map(Path::toString).sorted().toList();
+        }
+    }
+
+    /**
+     * 单文件脚本，供语句切分使用
+     *
+     * @param statements 语句数
+     * @param delimiter  分隔符（";"或存储过程的"/"）
+     * @return 脚本文本
+     */
+    public static String script(int statements, String delimiter) {
+        StringBuilder sb = new StringBuilder();
+        for (int s = 0; s < statements; s++) {
+            sb.append("-- step ").append(s).append('\n');
+            sb.append("select ").append(s).append(" from dual");
+            sb.append(";".equals(delimiter) ? ";\n" : "\n/\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 删除目录树
+     *
+     * @param root 根目录
+     * @throws IOException 删除异常
+     */
+    public static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root)) return;
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+}
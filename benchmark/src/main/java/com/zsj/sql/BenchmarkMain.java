@@ -0,0 +1,26 @@
+package com.zsj.sql;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准入口
+ * <p>
+ * 无参数：运行全部基准，并附带GC分析（gc.alloc.rate / gc.alloc.rate.norm 即分配速率）
+ * 有参数：原样交给JMH，例如 java -jar target/benchmarks.jar DataCompare -p rows=1000 -prof gc
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        Options options = new OptionsBuilder()
+                .include(BenchmarkMain.class.getPackageName() + ".*Benchmark")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
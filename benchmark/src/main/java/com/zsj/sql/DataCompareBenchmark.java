@@ -0,0 +1,116 @@
+package com.zsj.sql;
+
+import org.apache.ibatis.jdbc.SqlRunner;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.text.MessageFormat;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DataCompare 热点基准：SQL生成与对比执行（H2 Oracle兼容模式）
+ * <p>
+ * execCompare 有意包含结果CSV的写出，每次调用会在当前目录留下 DataCompareResult-yyMMddHHmm.csv，请在临时目录下运行；
+ * countQueries 只统计对比查询本身
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataCompareBenchmark {
+
+    /**
+     * 仅生成SQL，不连数据库
+     */
+    @State(Scope.Benchmark)
+    public static class SqlState {
+        @Param({"10", "1000"})
+        int tables;
+
+        DataCompare dataCompare;
+        DataCompare.Config config;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            dataCompare = new DataCompare();
+            config = BenchData.compareConfig(MessageFormat.format(BenchData.H2_URL, "sql"), tables);
+        }
+    }
+
+    /**
+     * 建好A、B表后执行对比
+     */
+    @State(Scope.Benchmark)
+    public static class DbState {
+        @Param({"4"})
+        int tables;
+        @Param({"1000", "100000"})
+        int rows;
+        @Param({"8"})
+        int cols;
+        @Param({"0.0", "0.01", "0.1"})
+        double drift;
+
+        DataCompare dataCompare;
+        DataCompare.Config config;
+        Map<String, Map<String, String>> compareSQLMap;
+        Connection holder;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            String url = MessageFormat.format(BenchData.H2_URL, "compare");
+            // 持有一个连接，保证内存库在整个试验期间存在
+            holder = DriverManager.getConnection(url, BenchData.H2_USR, BenchData.H2_PWD);
+            BenchData.createCompareTables(holder, tables, rows, cols, drift);
+            dataCompare = new DataCompare();
+            config = BenchData.compareConfig(url, tables);
+            compareSQLMap = dataCompare.getCompareSQLMap(config);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            try (Statement st = holder.createStatement()) {
+                st.execute("drop all objects");
+            }
+            holder.close();
+        }
+    }
+
+    @Benchmark
+    public void genCompareSQL(SqlState state, Blackhole bh) {
+        for (DataCompare.Config.Tab tab : state.config.getTabs()) {
+            bh.consume(state.dataCompare.genCompareSQL(tab, state.config.getA(), state.config.getB()));
+        }
+    }
+
+    @Benchmark
+    public Map<String, Map<String, String>> getCompareSQLMap(SqlState state) {
+        return state.dataCompare.getCompareSQLMap(state.config);
+    }
+
+    /**
+     * 仅对比查询：逐表逐方向 count(minus)，不建连、不写CSV
+     */
+    @Benchmark
+    public void countQueries(DbState state, Blackhole bh) throws Exception {
+        SqlRunner runner = new SqlRunner(state.holder);
+        for (Map<String, String> queryMap : state.compareSQLMap.values()) {
+            for (String sql : queryMap.values()) {
+                bh.consume(runner.selectOne(state.dataCompare.genCountSQL(sql)).get("COUNT"));
+            }
+        }
+    }
+
+    /**
+     * 完整对比：建连、逐表逐方向 count(minus)、写结果CSV（写到当前目录，含写出开销）
+     */
+    @Benchmark
+    public void execCompare(DbState state) {
+        state.dataCompare.execCompare(state.compareSQLMap, state.config);
+    }
+}
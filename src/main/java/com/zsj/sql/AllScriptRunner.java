@@ -1,11 +1,16 @@
 package com.zsj.sql;
 
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
 import org.apache.ibatis.jdbc.ScriptRunner;
 
+import javax.sql.DataSource;
 import java.io.*;
-import java.nio.file.Paths;
+import java.nio.file.*;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.regex.Matcher;
@@ -28,6 +33,17 @@ import java.util.regex.Pattern;
  * 【1】第1个.sh脚本的运行参数
  * ...
  * -------------------------------
+ * <p>
+ * 常驻模式（运行参数 watch）
+ * -------------------------------
+ * 沿用run.conf的前六行，目标路径作为投放目录；
+ * 常驻进程保持数据库连接池，监听投放目录，新到达的脚本包（子目录）按名称顺序立即执行其SQL脚本；
+ * 连接池中的连接每次取出执行脚本前重置会话（包状态、current_schema），NLS设置与临时表内容不重置；
+ * 运行状态写入投放目录下的 AllScriptRunner.status 文件；
+ * 脚本包运行失败（错误时停止）后进程不退出，保持 FAIL 状态与连接池，拒绝后续脚本包并记入状态文件的 refused，
+ * 排查后重启，重启时仍在投放目录中的 refused 脚本包会按名称顺序补跑，其余已存在的脚本包跳过；
+ * 脚本包请整体移动（mv）进投放目录，避免复制过程中被提前执行。
+ * -------------------------------
  *
  * @author zhongshijie
  * @create 2022/3/2 21:19
@@ -44,6 +60,22 @@ public class AllScriptRunner {
     private static final String TAG_MULTI = "multi";
     private static final String TAG_LINE = "-----------";
     private static final String TAG_RUN_CONF = "run.conf";
+    private static final String TAG_WATCH = "watch";
+    private static final String TAG_STATUS_FILE = "AllScriptRunner.status";
+    private static final String TAG_STATE_IDLE = "IDLE";
+    private static final String TAG_STATE_RUNNING = "RUNNING";
+    private static final String TAG_STATE_FAIL = "FAIL";
+    private static final String TAG_STATE_STOPPED = "STOPPED";
+    private static final String TAG_RESULT_OK = "OK";
+    private static final String TAG_PING_SQL = "select 1 from dual";
+    private static final String TAG_RESET_SESSION_SQL = "begin"
+            + " dbms_session.modify_package_state(dbms_session.reinitialize);"
+            + " execute immediate 'alter session set current_schema = ' || sys_context('userenv', 'session_user');"
+            + " end;";
+    private static final int POOL_SIZE = 10;
+    private static final int POOL_PING_IDLE_MILLIS = 60000;
+    private static final int POOL_CHECKOUT_MILLIS = Integer.MAX_VALUE;
+    private static final long SETTLE_MILLIS = 200;
     private static final String TXT_INPUT = "请输入 [%s]: ";
     private static final String TXT_INPUT_WRONG = "输入错误，请重新输入: ";
     private static final String TXT_GET_FILES = "获取 [%s] [%s] 文件来自 [%s]";
@@ -68,6 +100,14 @@ public class AllScriptRunner {
     private static final String TXT_USR = "用户名";
     private static final String TXT_PWD = "密码";
     private static final String TXT_RUN_FAIL = "运行失败-[%s]";
+    private static final String TXT_WATCHING = "常驻模式，正在监听 [%s]";
+    private static final String TXT_SKIP_EXISTS = "跳过已存在的脚本包 [%s]";
+    private static final String TXT_SKIP_SHELL = "常驻模式不执行Shell脚本，跳过 [%s] 个 [%s] 文件来自 [%s]";
+    private static final String TXT_WATCH_STOP = "常驻模式已停止";
+    private static final String TXT_HALTED = "此前脚本包运行失败，拒绝执行 [%s]，排查后重启将补跑";
+    private static final String TXT_RERUN_REFUSED = "补跑上次被拒绝的脚本包 [%s]";
+    private static final String TXT_BUNDLE_GONE = "脚本包已不存在，跳过 [%s]";
+    private static final String TXT_RESET_SESSION = "重置会话";
     /* 全局变量：需要替换的脚本 */
     private static final Map<String, String> NEED_REPLACE_STR = new HashMap<>() {
         {
@@ -87,6 +127,11 @@ public class AllScriptRunner {
      * @throws Exception 任意异常
      */
     public static void main(String[] args) throws Exception {
+        if (args.length > 0 && TAG_WATCH.equals(args[0])) {
+            WatchTask watchTask = new WatchTask();
+            watchTask.run();
+            return;
+        }
         AllTask allTask = new AllTask();
         allTask.run();
     }
@@ -125,6 +170,18 @@ public class AllScriptRunner {
             log(String.format(TXT_INPUT, inputName));
             return sc.nextLine();
         }
+
+        /**
+         * 若存在run.conf，则改从run.conf获取输入
+         *
+         * @throws IOException 读取run.conf异常
+         */
+        public static void loadConf() throws IOException {
+            File conf = new File(TAG_RUN_CONF);
+            if (conf.exists()) {
+                sc = new Scanner(Paths.get(TAG_RUN_CONF));
+            }
+        }
     }
 
     /**
@@ -133,24 +190,67 @@ public class AllScriptRunner {
     static class SqlTask {
 
         /* SQL任务执行器所需的常量 */
-        private final String url;
-        private final String usr;
-        private final String pwd;
+        private final DataSource dataSource;
+        private final boolean resetSession;
         private final List<String> fileNames = new ArrayList<>();
 
+        /**
+         * 创建每次取连接都新建连接的数据源（与各脚本独立会话一致）
+         *
+         * @param url 数据库URL
+         * @param usr 数据库用户名
+         * @param pwd 数据库密码
+         * @return 数据源
+         * @throws SQLException 找不到URL对应的驱动
+         */
+        public static UnpooledDataSource newUnpooled(String url, String usr, String pwd) throws SQLException {
+            String driver = DriverManager.getDriver(url).getClass().getName();
+            return new UnpooledDataSource(driver, url, usr, pwd);
+        }
+
+        /**
+         * 创建数据库连接池（跨脚本包复用连接）
+         *
+         * @param url 数据库URL
+         * @param usr 数据库用户名
+         * @param pwd 数据库密码
+         * @return 数据库连接池
+         * @throws SQLException 找不到URL对应的驱动
+         */
+        public static PooledDataSource newPool(String url, String usr, String pwd) throws SQLException {
+            String driver = DriverManager.getDriver(url).getClass().getName();
+            PooledDataSource dataSource = new PooledDataSource(driver, url, usr, pwd);
+            dataSource.setPoolMaximumActiveConnections(POOL_SIZE);
+            dataSource.setPoolMaximumIdleConnections(POOL_SIZE);
+            // 脚本可能长时间占用连接，不允许连接池回收仍在使用的连接
+            dataSource.setPoolMaximumCheckoutTime(POOL_CHECKOUT_MILLIS);
+            dataSource.setPoolPingEnabled(true);
+            dataSource.setPoolPingQuery(TAG_PING_SQL);
+            dataSource.setPoolPingConnectionsNotUsedFor(POOL_PING_IDLE_MILLIS);
+            return dataSource;
+        }
+
+        /**
+         * 初始化SQL任务（执行前不重置会话）
+         *
+         * @param path       SQL文件根目录
+         * @param dataSource 数据源
+         */
+        public SqlTask(String path, DataSource dataSource) {
+            this(path, dataSource, false);
+        }
+
         /**
          * 初始化SQL任务
          *
-         * @param path SQL文件根目录
-         * @param url  数据库URL
-         * @param usr  数据库用户名
-         * @param pwd  数据库密码
+         * @param path         SQL文件根目录
+         * @param dataSource   数据源
+         * @param resetSession 执行每个脚本前是否重置会话（连接池复用连接时使用）
          */
-        public SqlTask(String path, String url, String usr, String pwd) {
+        public SqlTask(String path, DataSource dataSource, boolean resetSession) {
             // 赋值数据库信息
-            this.url = url;
-            this.usr = usr;
-            this.pwd = pwd;
+            this.dataSource = dataSource;
+            this.resetSession = resetSession;
             // 获取所有SQL文件
             getAllSql(path);
             // 对所有文件进行排序
@@ -284,16 +384,22 @@ public class AllScriptRunner {
             String errorLog = String.format("%s_err.log", baseName);
             String runLog = String.format("%s_run.log", baseName);
             // 运行脚本
-            try (Connection conn = DriverManager.getConnection(this.url, this.usr, this.pwd)) {
+            try (Connection conn = dataSource.getConnection();
+                 Reader reader = new FileReader(file);
+                 PrintWriter runWriter = new PrintWriter(new File(parentPath, runLog));
+                 PrintWriter errWriter = new PrintWriter(new File(parentPath, errorLog))) {
+                if (resetSession && !resetSession(conn, errWriter)) {
+                    throw new Exception(TXT_RESET_SESSION);
+                }
                 ScriptRunner runner = new ScriptRunner(conn);
                 if (fileName.toLowerCase().contains(TAG_PROC_SQL_FILE)) {
                     runner.setDelimiter("/");
                 }
                 runner.setStopOnError(false);
                 runner.setAutoCommit(true);
-                runner.setLogWriter(new PrintWriter(new File(parentPath, runLog)));
-                runner.setErrorLogWriter(new PrintWriter(new File(parentPath, errorLog)));
-                runner.runScript(new FileReader(file));
+                runner.setLogWriter(runWriter);
+                runner.setErrorLogWriter(errWriter);
+                runner.runScript(reader);
                 Mutual.log(TXT_END, fileName);
             } catch (Exception e) {
                 Mutual.log(TXT_SOME_EXP, fileName, e.getMessage());
@@ -303,6 +409,23 @@ public class AllScriptRunner {
             }
         }
 
+        /**
+         * 重置复用连接的会话：重新初始化包状态，current_schema 恢复为登录用户
+         *
+         * @param conn      数据库连接
+         * @param errWriter 错误日志（重置失败时写入，以便按错误时停止处理）
+         * @return 是否重置成功
+         */
+        private boolean resetSession(Connection conn, PrintWriter errWriter) {
+            try (Statement st = conn.createStatement()) {
+                st.execute(TAG_RESET_SESSION_SQL);
+                return true;
+            } catch (SQLException e) {
+                errWriter.println(String.format(TXT_SOME_EXP, TXT_RESET_SESSION, e.getMessage()));
+                return false;
+            }
+        }
+
         /**
          * 并发执行SQL脚本
          *
@@ -310,6 +433,11 @@ public class AllScriptRunner {
          */
         private void runMulti(List<String> fileNames) throws Exception {
             Mutual.log(TXT_MULTI_START);
+            // 连接池需容纳本组全部并发脚本（此时无连接被占用，扩容关闭的只是空闲连接）
+            if (dataSource instanceof PooledDataSource pooled
+                    && pooled.getPoolMaximumActiveConnections() < fileNames.size()) {
+                pooled.setPoolMaximumActiveConnections(fileNames.size());
+            }
             // 为每个SQL创建线程并执行
             Vector<Thread> threadVector = new Vector<>();
             List<String> errorFileName = new ArrayList<>();
@@ -386,6 +514,10 @@ public class AllScriptRunner {
             fileNames.sort(String::compareTo);
         }
 
+        public int size() {
+            return fileNames.size();
+        }
+
         private void getAllSh(File file) {
             File[] fs = file.listFiles();
             if (fs == null) {
@@ -453,10 +585,7 @@ public class AllScriptRunner {
         private final List<String> dirs = new ArrayList<>();
 
         public AllTask() throws IOException {
-            File conf = new File(TAG_RUN_CONF);
-            if (conf.exists()) {
-                sc = new Scanner(Paths.get(TAG_RUN_CONF));
-            }
+            Mutual.loadConf();
             String path = Mutual.getInput(TXT_TARGET_PATH);
             for (File file : Objects.requireNonNull(new File(path).listFiles())) {
                 if (file.isDirectory()) {
@@ -472,6 +601,7 @@ public class AllScriptRunner {
             String usr = Mutual.getInput(TXT_USR);
             String pwd = Mutual.getInput(TXT_PWD);
             String needAuto = Mutual.getInput(String.format(TXT_SURE_TO_RUN, TXT_NEED_AUTO)).toLowerCase();
+            DataSource dataSource = SqlTask.newUnpooled(url, usr, pwd);
             for (String dir : dirs) {
                 boolean keyOk = false;
                 Mutual.log(dir);
@@ -483,7 +613,7 @@ public class AllScriptRunner {
                             ShellTask shellTask = new ShellTask(dir);
                             shellTask.run();
                             // 查看和运行SQL
-                            SqlTask sqlTask = new SqlTask(dir, url, usr, pwd);
+                            SqlTask sqlTask = new SqlTask(dir, dataSource);
                             sqlTask.run();
                             keyOk = true;
                             break;
@@ -500,4 +630,237 @@ public class AllScriptRunner {
         }
     }
 
+    /**
+     * 常驻任务调度器
+     */
+    static class WatchTask {
+
+        private final Path dropPath;
+        private final WatchService watcher;
+        /* 上次被拒绝、重启后需补跑的脚本包 */
+        private final List<Path> pending = new ArrayList<>();
+        /* 以下状态由 writeStatus 的锁保护：最近的脚本包与结果、被拒绝的脚本包、是否已停止 */
+        private String lastBundle = "";
+        private String lastResult = "";
+        private final List<String> refused = new ArrayList<>();
+        private boolean stopped = false;
+        /* 是否因脚本包失败而停止接收新脚本包 */
+        private boolean halted = false;
+
+        public WatchTask() throws IOException {
+            Mutual.loadConf();
+            dropPath = Paths.get(Mutual.getInput(TXT_TARGET_PATH)).toAbsolutePath();
+            // 先注册监听再列出已有目录，期间到达的脚本包不会遗漏
+            watcher = FileSystems.getDefault().newWatchService();
+            dropPath.register(watcher, StandardWatchEventKinds.ENTRY_CREATE);
+            Set<String> lastRefused = loadRefused();
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dropPath, Files::isDirectory)) {
+                for (Path dir : ds) {
+                    if (lastRefused.contains(dir.toString())) {
+                        Mutual.log(TXT_RERUN_REFUSED, dir);
+                        pending.add(dir);
+                    } else {
+                        Mutual.log(TXT_SKIP_EXISTS, dir);
+                    }
+                }
+            }
+            pending.sort(Path::compareTo);
+        }
+
+        public void run() throws Exception {
+            stopOnError = Mutual.getInput(String.format(TXT_SURE_TO_RUN, TXT_STOP_ON_ERR)).toLowerCase();
+            String url = Mutual.getInput(TXT_URL);
+            String usr = Mutual.getInput(TXT_USR);
+            String pwd = Mutual.getInput(TXT_PWD);
+            // 常驻模式总是无需确认，此行仅为与run.conf保持一致
+            Mutual.getInput(String.format(TXT_SURE_TO_RUN, TXT_NEED_AUTO));
+            PooledDataSource dataSource = SqlTask.newPool(url, usr, pwd);
+            // 预热连接池
+            try (Connection ignored = dataSource.getConnection()) {
+                writeStatus(TAG_STATE_IDLE, "", "");
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                stop();
+                dataSource.forceCloseAll();
+                Mutual.log(TXT_WATCH_STOP);
+            }));
+            Mutual.log(TXT_WATCHING, dropPath);
+            runBundles(pending, dataSource);
+            while (true) {
+                WatchKey key = watcher.take();
+                // 同一批到达的脚本包按名称顺序执行
+                List<Path> bundles = new ArrayList<>();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) continue;
+                    Path dir = dropPath.resolve((Path) event.context());
+                    if (Files.isDirectory(dir)) bundles.add(dir);
+                }
+                key.reset();
+                bundles.sort(Path::compareTo);
+                runBundles(bundles, dataSource);
+            }
+        }
+
+        /**
+         * 按顺序运行脚本包，失败后拒绝其余脚本包
+         *
+         * @param bundles    脚本包目录列表
+         * @param dataSource 数据库连接池
+         * @throws InterruptedException 等待脚本包就绪被中断
+         */
+        private void runBundles(List<Path> bundles, PooledDataSource dataSource) throws InterruptedException {
+            for (Path bundle : bundles) {
+                if (halted) {
+                    refuse(bundle);
+                    continue;
+                }
+                runBundle(bundle, dataSource);
+            }
+        }
+
+        /**
+         * 运行单个脚本包，失败时记录状态并停止接收后续脚本包
+         *
+         * @param bundle     脚本包目录
+         * @param dataSource 数据库连接池
+         * @throws InterruptedException 等待脚本包就绪被中断
+         */
+        private void runBundle(Path bundle, PooledDataSource dataSource) throws InterruptedException {
+            String dir = bundle.toString();
+            // 等待就绪期间脚本包可能被删除或改名，此时跳过
+            try {
+                waitSettled(bundle);
+            } catch (IOException | UncheckedIOException e) {
+                Mutual.log(TXT_SOME_EXP, dir, e.getMessage());
+            }
+            if (!Files.isDirectory(bundle)) {
+                Mutual.log(TXT_BUNDLE_GONE, dir);
+                return;
+            }
+            Mutual.log(dir);
+            writeStatus(TAG_STATE_RUNNING, dir, "");
+            try {
+                ShellTask shellTask = new ShellTask(dir);
+                if (shellTask.size() > 0) Mutual.log(TXT_SKIP_SHELL, shellTask.size(), TAG_SH_FILE, dir);
+                SqlTask sqlTask = new SqlTask(dir, dataSource, true);
+                sqlTask.run();
+            } catch (Exception e) {
+                Mutual.log(TXT_SOME_EXP, dir, e.getMessage());
+                halted = true;
+                writeStatus(TAG_STATE_FAIL, dir, String.valueOf(e.getMessage()));
+                return;
+            }
+            writeStatus(TAG_STATE_IDLE, dir, TAG_RESULT_OK);
+        }
+
+        /**
+         * 等待脚本包内文件不再变化
+         *
+         * @param bundle 脚本包目录
+         * @throws IOException          读取目录异常
+         * @throws InterruptedException 等待被中断
+         */
+        private void waitSettled(Path bundle) throws IOException, InterruptedException {
+            String last = null;
+            String now = signature(bundle);
+            while (!now.equals(last)) {
+                Thread.sleep(SETTLE_MILLIS);
+                last = now;
+                now = signature(bundle);
+            }
+        }
+
+        /**
+         * 计算目录的签名（文件数、总大小、最后修改时间）
+         *
+         * @param bundle 脚本包目录
+         * @return 目录签名
+         * @throws IOException 读取目录异常
+         */
+        private String signature(Path bundle) throws IOException {
+            long[] sum = new long[3];
+            try (var paths = Files.walk(bundle)) {
+                paths.filter(Files::isRegularFile).forEach(p -> {
+                    File f = p.toFile();
+                    sum[0]++;
+                    sum[1] += f.length();
+                    sum[2] = Math.max(sum[2], f.lastModified());
+                });
+            }
+            return Arrays.toString(sum);
+        }
+
+        /**
+         * 读取上次状态文件中被拒绝的脚本包
+         *
+         * @return 被拒绝的脚本包路径
+         */
+        private Set<String> loadRefused() {
+            Set<String> result = new HashSet<>();
+            Path statusFile = dropPath.resolve(TAG_STATUS_FILE);
+            if (!Files.exists(statusFile)) return result;
+            Properties status = new Properties();
+            try (Reader r = Files.newBufferedReader(statusFile)) {
+                status.load(r);
+            } catch (IOException e) {
+                Mutual.log(TXT_SOME_EXP, statusFile, e.getMessage());
+                return result;
+            }
+            String last = status.getProperty("refused", "");
+            if (!last.isEmpty()) result.addAll(Arrays.asList(last.split(File.pathSeparator)));
+            return result;
+        }
+
+        /**
+         * 拒绝脚本包并记入状态文件
+         *
+         * @param bundle 脚本包目录
+         */
+        private synchronized void refuse(Path bundle) {
+            Mutual.log(TXT_HALTED, bundle);
+            refused.add(bundle.toString());
+            writeStatus(TAG_STATE_FAIL, lastBundle, lastResult);
+        }
+
+        /**
+         * 写入最终的 STOPPED 状态，此后不再改写状态文件
+         */
+        private synchronized void stop() {
+            writeStatus(TAG_STATE_STOPPED, lastBundle, lastResult);
+            stopped = true;
+        }
+
+        /**
+         * 将运行状态连同最近的脚本包、结果与被拒绝的脚本包原子写入状态文件
+         *
+         * @param state  状态
+         * @param bundle 最近的脚本包
+         * @param result 最近的结果
+         */
+        private synchronized void writeStatus(String state, String bundle, String result) {
+            if (stopped) return;
+            lastBundle = bundle;
+            lastResult = result;
+            Properties status = new Properties();
+            status.setProperty("state", state);
+            status.setProperty("bundle", bundle);
+            status.setProperty("result", result);
+            status.setProperty("refused", String.join(File.pathSeparator, refused));
+            status.setProperty("time", Mutual.nowStr());
+            Path tmp = dropPath.resolve(TAG_STATUS_FILE + ".tmp");
+            try (Writer w = Files.newBufferedWriter(tmp)) {
+                status.store(w, null);
+            } catch (IOException e) {
+                Mutual.log(TXT_SOME_EXP, tmp, e.getMessage());
+                return;
+            }
+            try {
+                Files.move(tmp, dropPath.resolve(TAG_STATUS_FILE),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Mutual.log(TXT_SOME_EXP, tmp, e.getMessage());
+            }
+        }
+    }
+
 }